@@ -358,7 +358,55 @@ public class Maze
 			
 			return unreachableNeighborPairs;
 		}
-		
+
+		/**
+		 * Same idea as GetEstrangedNeighbors, but instead of building pairs it sets bits in per-row wall bitsets
+		 * eastWalls[y] has bit x set if (x,y) and (x+1,y) are separated by this barrier
+		 * northWalls[y] has bit x set if (x,y) and (x,y+1) are separated by this barrier
+		 * Bit x of a row lives in word x / 64, at position x % 64
+		 * @param eastWalls
+		 * @param northWalls
+		 * @param width
+		 * @param height
+		 */
+		public void MarkWalls(long[][] eastWalls, long[][] northWalls, int width, int height)
+		{
+			if (this.orientation == Orientation.Vertical)
+			{
+				int xIdx = this.scaledDownStartX;
+				int topYMazeIdx = this.scaledDownEndY - 1;
+				int bottomYMazeIdx = this.scaledDownStartY;
+
+				// left and right edges aren't separating anyone
+				if ((xIdx != 0) && (xIdx != width))
+				{
+					int leftMazeIdx = xIdx - 1;  // the wall sits on the east side of this column
+
+					for (int y = bottomYMazeIdx; y <= topYMazeIdx; y++)
+					{
+						eastWalls[y][leftMazeIdx >>> 6] |= 1L << leftMazeIdx;
+					}
+				}
+			}
+			else
+			{
+				int yIdx = this.scaledDownStartY;
+				int leftXMazeIdx = this.scaledDownStartX;
+				int rightXMazeIdx = this.scaledDownEndX - 1;
+
+				// top and bottom edges aren't separating anyone
+				if ((yIdx != 0) && (yIdx != height))
+				{
+					int bottomMazeIdx = yIdx - 1;  // the wall sits on the north side of this row
+
+					for (int x = leftXMazeIdx; x <= rightXMazeIdx; x++)
+					{
+						northWalls[bottomMazeIdx][x >>> 6] |= 1L << x;
+					}
+				}
+			}
+		}
+
 		/**
 		 * Given this barrier's properties, see if we can rule out any entrance candidates from the bottom row
 		 * Only does something if this line is on the bottom edge
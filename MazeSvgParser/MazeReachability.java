@@ -0,0 +1,684 @@
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Flood-fill reachability over a maze, 64 cells at a time
+ * Each row of the maze is a bitset stored in longs (bit x of row y is cell (x,y)), and the walls are stored the same way.
+ * Instead of dequeuing cells one at a time like a regular BFS, every step grows the whole frontier at once by
+ * shifting each row left/right (east/west) and copying it up/down (north/south), masked by the walls.
+ */
+public class MazeReachability
+{
+	private int width;
+	private int height;
+	private int wordsPerRow;
+	private long lastWordMask;  // bits of the last word in a row that are actually inside the maze
+
+	private long[][] eastWalls;   // eastWalls[y] bit x: can't move between (x,y) and (x+1,y)
+	private long[][] northWalls;  // northWalls[y] bit x: can't move between (x,y) and (x,y+1)
+
+	public MazeReachability(List<Maze.Barrier> barriers, int width, int height)
+	{
+		this(width, height);
+
+		for (Maze.Barrier barrier : barriers)
+		{
+			barrier.MarkWalls(this.eastWalls, this.northWalls, width, height);
+		}
+	}
+
+	private MazeReachability(int width, int height)
+	{
+		if (width <= 0 || height <= 0)
+		{
+			throw new IllegalArgumentException("Maze dimensions must be positive. Got " + width + "x" + height);
+		}
+
+		this.width = width;
+		this.height = height;
+		this.wordsPerRow = (width + 63) >>> 6;
+		this.lastWordMask = (width & 63) == 0 ? -1L : (1L << (width & 63)) - 1;
+		this.eastWalls = new long[height][this.wordsPerRow];
+		this.northWalls = new long[height][this.wordsPerRow];
+	}
+
+	public static MazeReachability LoadFromSVG(String svgFileName, int width, int height) throws Exception
+	{
+		return new MazeReachability(Maze.GetMazeBarriers(svgFileName, width, height), width, height);
+	}
+
+	/**
+	 * Builds the wall bitsets from an already loaded map of unreachable neighbors (like the one in Maze.Info)
+	 * Pairs that aren't horizontally or vertically adjacent are ignored
+	 * @param unreachableNeighbors
+	 * @param width
+	 * @param height
+	 * @return
+	 */
+	public static MazeReachability FromUnreachableNeighbors(Map<Maze.Coord, Set<Maze.Coord>> unreachableNeighbors, int width, int height)
+	{
+		MazeReachability rtn = new MazeReachability(width, height);
+
+		for (Map.Entry<Maze.Coord, Set<Maze.Coord>> entry : unreachableNeighbors.entrySet())
+		{
+			Maze.Coord a = entry.getKey();
+			for (Maze.Coord b : entry.getValue())
+			{
+				// each pair shows up from both sides, so only handle it from the lower/left one
+				if (b.Y == a.Y && b.X == a.X + 1)
+				{
+					rtn.eastWalls[a.Y][a.X >>> 6] |= 1L << a.X;
+				}
+				else if (b.X == a.X && b.Y == a.Y + 1)
+				{
+					rtn.northWalls[a.Y][a.X >>> 6] |= 1L << a.X;
+				}
+			}
+		}
+
+		return rtn;
+	}
+
+	/**
+	 * Returns every cell reachable from source (including source itself)
+	 * @param source
+	 * @return
+	 */
+	public CellSet Reachable(Maze.Coord source)
+	{
+		return Reachable(Collections.singletonList(source));
+	}
+
+	/**
+	 * Multi-source flood: returns every cell reachable from any of the sources
+	 * @param sources
+	 * @return
+	 */
+	public CellSet Reachable(List<Maze.Coord> sources)
+	{
+		long[][] visited = new long[this.height][this.wordsPerRow];
+
+		// we don't care about distances here, so each step also runs the frontier all the way down its corridors
+		// within a row, which takes far fewer steps than growing one cell at a time
+		flood(sources, visited, true, null);
+
+		// visited was made just for this call, so the set can keep it
+		return new RowCellSet(visited, this.width, this.height);
+	}
+
+	/**
+	 * Returns the BFS layers around source: element d of the list is the set of cells whose shortest path from source is d steps
+	 * @param source
+	 * @return
+	 */
+	public List<CellSet> DistanceBands(Maze.Coord source)
+	{
+		return DistanceBands(Collections.singletonList(source));
+	}
+
+	/**
+	 * Multi-source version of DistanceBands: element d of the list is the set of cells whose shortest path from the closest source is d steps
+	 * All of the bands are views onto one distance-per-cell array, so memory grows with the number of cells, not with layers times rows
+	 * @param sources
+	 * @return
+	 */
+	public List<CellSet> DistanceBands(List<Maze.Coord> sources)
+	{
+		long[][] visited = new long[this.height][this.wordsPerRow];
+		BandList bands = new BandList(this.width, this.height);
+
+		flood(sources, visited, false, bands);
+
+		return bands;
+	}
+
+	/**
+	 * Runs the flood from sources until the frontier is empty, marking everything it reaches in visited
+	 * Only two frontier buffers are used: each step writes into next, then the old frontier's active rows are cleared and the two swap
+	 * @param bands if not null, each frontier gets recorded as a band before it's expanded
+	 */
+	private void flood(List<Maze.Coord> sources, long[][] visited, boolean saturateRows, BandList bands)
+	{
+		Frontier frontier = new Frontier(this.height, this.wordsPerRow);
+		Frontier next = new Frontier(this.height, this.wordsPerRow);
+
+		boolean any = seed(sources, visited, frontier);
+
+		while (any)
+		{
+			if (bands != null)
+			{
+				bands.AddBand(frontier);
+			}
+
+			any = step(frontier, visited, next, saturateRows);
+
+			frontier.Clear();
+
+			Frontier swap = frontier;
+			frontier = next;
+			next = swap;
+		}
+	}
+
+	/**
+	 * Marks the sources in visited and frontier
+	 * @return false if there are no sources
+	 */
+	private boolean seed(List<Maze.Coord> sources, long[][] visited, Frontier frontier)
+	{
+		for (Maze.Coord source : sources)
+		{
+			if (source.X < 0 || source.X >= this.width || source.Y < 0 || source.Y >= this.height)
+			{
+				throw new IllegalArgumentException("Source " + source + " is outside of the " + this.width + "x" + this.height + " maze");
+			}
+
+			long bit = 1L << source.X;
+			visited[source.Y][source.X >>> 6] |= bit;
+			frontier.Rows[source.Y][source.X >>> 6] |= bit;
+			frontier.Include(source.Y, source.X >>> 6, source.X >>> 6);
+		}
+
+		Arrays.sort(frontier.ActiveRows, 0, frontier.ActiveCount);
+		return frontier.ActiveCount > 0;
+	}
+
+	/**
+	 * Grows the frontier by one step in all four directions, into next (which must be empty)
+	 * A step moves at most one row or one word, so the only rows of next that can pick anything up are the frontier's
+	 * active rows and the rows right above and below them, and only in the words next to the frontier's words in those rows.
+	 * That keeps the cost of a step down to the number of rows that are actually live, not the whole maze.
+	 * New cells are added to visited
+	 * @param saturateRows if true, newly reached cells also keep going east/west until they hit a wall
+	 * @return false if next is empty
+	 */
+	private boolean step(Frontier frontier, long[][] visited, Frontier next, boolean saturateRows)
+	{
+		int lastWord = this.wordsPerRow - 1;
+
+		// first work out which rows and words of next to look at
+		for (int i = 0; i < frontier.ActiveCount; i++)
+		{
+			int y = frontier.ActiveRows[i];
+			int minWord = frontier.MinWord[y];
+			int maxWord = frontier.MaxWord[y];
+
+			next.Include(y, Math.max(minWord - 1, 0), Math.min(maxWord + 1, lastWord));
+			if (y > 0)
+			{
+				next.Include(y - 1, minWord, maxWord);
+			}
+			if (y < this.height - 1)
+			{
+				next.Include(y + 1, minWord, maxWord);
+			}
+		}
+
+		// bands hand their cells back from the bottom row up, so keep the rows in order
+		Arrays.sort(next.ActiveRows, 0, next.ActiveCount);
+
+		int kept = 0;
+		for (int i = 0; i < next.ActiveCount; i++)
+		{
+			int y = next.ActiveRows[i];
+			int firstWord = next.MinWord[y];
+			int lastRowWord = next.MaxWord[y];
+			long[] row = next.Rows[y];
+			long[] east = this.eastWalls[y];
+			long[] seen = visited[y];
+
+			// east and west moves within the row
+			eastWestMoves(frontier.Rows[y], east, row, firstWord, lastRowWord);
+
+			// moving north from the row below, through the gaps in that row's north walls
+			if (y > 0)
+			{
+				long[] below = frontier.Rows[y - 1];
+				long[] belowWalls = this.northWalls[y - 1];
+				for (int w = firstWord; w <= lastRowWord; w++)
+				{
+					row[w] |= below[w] & ~belowWalls[w];
+				}
+			}
+
+			// moving south from the row above, through the gaps in this row's north walls
+			if (y < this.height - 1)
+			{
+				long[] above = frontier.Rows[y + 1];
+				long[] walls = this.northWalls[y];
+				for (int w = firstWord; w <= lastRowWord; w++)
+				{
+					row[w] |= above[w] & ~walls[w];
+				}
+			}
+
+			// drop anything already visited, and see which words still have something in them
+			int rowMinWord = this.wordsPerRow;
+			int rowMaxWord = -1;
+			for (int w = firstWord; w <= lastRowWord; w++)
+			{
+				row[w] &= ~seen[w];
+				if (row[w] != 0)
+				{
+					rowMinWord = Math.min(rowMinWord, w);
+					rowMaxWord = w;
+				}
+			}
+
+			if (rowMaxWord < 0)
+			{
+				// nothing new in this row, so it drops out of next
+				next.MaxWord[y] = -1;
+				continue;
+			}
+
+			next.MinWord[y] = rowMinWord;
+			next.MaxWord[y] = rowMaxWord;
+
+			if (saturateRows)
+			{
+				saturate(next, y, seen, east);
+			}
+
+			for (int w = next.MinWord[y]; w <= next.MaxWord[y]; w++)
+			{
+				seen[w] |= row[w];
+			}
+			next.ActiveRows[kept++] = y;
+		}
+
+		next.ActiveCount = kept;
+		return kept > 0;
+	}
+
+	/**
+	 * Sets words fromWord to toWord of out to every cell that's one east or west move away from a cell in row
+	 * Shifting left moves bits east (x -> x + 1), and bits carry across word boundaries
+	 */
+	private void eastWestMoves(long[] row, long[] eastWalls, long[] out, int fromWord, int toWord)
+	{
+		int last = this.wordsPerRow - 1;
+		for (int w = fromWord; w <= toWord; w++)
+		{
+			// east: anyone without a wall on their east side moves up a bit
+			long canMoveEast = row[w] & ~eastWalls[w];
+			long movedEast = canMoveEast << 1;
+			if (w > 0)
+			{
+				movedEast |= (row[w - 1] & ~eastWalls[w - 1]) >>> 63;
+			}
+
+			// west: a cell moves down a bit if the cell it lands on doesn't have a wall on its east side
+			long movedWest = row[w] >>> 1;
+			if (w < last)
+			{
+				movedWest |= row[w + 1] << 63;
+			}
+			movedWest &= ~eastWalls[w];
+
+			out[w] = movedEast | movedWest;
+		}
+		if (toWord == last)
+		{
+			out[last] &= this.lastWordMask;
+		}
+	}
+
+	/**
+	 * Grows row y of next east and west (skipping anything in visited) as far as it can go, in one pass each way
+	 * Within a word this uses the carry of an addition: if open has bit x set when a cell can move from x to x + 1,
+	 * then adding a seed bit to open ripples the carry through the run of open bits above it, so (open + seeds) ^ open
+	 * is every cell the seeds run into. A carry out of the top bit means the run keeps going in the next word.
+	 * West is the same thing on bit-reversed words, walking the words from the top down.
+	 * Each pass starts at the row's live words and stops as soon as it's past them with no carry left,
+	 * and the row's word range in next is widened to wherever the runs ended up.
+	 */
+	private void saturate(Frontier next, int y, long[] visited, long[] eastWalls)
+	{
+		long[] row = next.Rows[y];
+		int last = this.wordsPerRow - 1;
+		int minWord = next.MinWord[y];
+		int maxWord = next.MaxWord[y];
+
+		// east
+		long carry = 0;
+		int w = minWord;
+		for (; w <= last && (w <= maxWord || carry != 0); w++)
+		{
+			long allowedNext = allowed(visited, w) >>> 1;
+			if (w < last)
+			{
+				allowedNext |= allowed(visited, w + 1) << 63;
+			}
+			long open = ~eastWalls[w] & allowedNext;
+
+			long seeds = row[w] | carry;
+			long movers = seeds & open;
+			long sum = open + movers;
+			row[w] = seeds | (sum ^ open);
+			carry = (movers != 0 && Long.compareUnsigned(sum, open) < 0) ? 1L : 0L;
+		}
+		maxWord = Math.max(maxWord, w - 1);
+
+		// west
+		carry = 0;
+		w = maxWord;
+		for (; w >= 0 && (w >= minWord || carry != 0); w--)
+		{
+			// bit x: can move from x to x - 1
+			long open = (~eastWalls[w] & allowed(visited, w)) << 1;
+			if (w > 0)
+			{
+				open |= (~eastWalls[w - 1] & allowed(visited, w - 1)) >>> 63;
+			}
+
+			long seeds = Long.reverse(row[w]) | carry;
+			long reversedOpen = Long.reverse(open);
+			long movers = seeds & reversedOpen;
+			long sum = reversedOpen + movers;
+			row[w] = Long.reverse(seeds | (sum ^ reversedOpen));
+			carry = (movers != 0 && Long.compareUnsigned(sum, reversedOpen) < 0) ? 1L : 0L;
+		}
+		minWord = Math.min(minWord, w + 1);
+
+		next.MinWord[y] = minWord;
+		next.MaxWord[y] = maxWord;
+	}
+
+	/**
+	 * Cells in word w of a row that haven't been visited and are inside the maze
+	 */
+	private long allowed(long[] visited, int w)
+	{
+		long rtn = ~visited[w];
+		if (w == this.wordsPerRow - 1)
+		{
+			rtn &= this.lastWordMask;
+		}
+		return rtn;
+	}
+
+	/**
+	 * One BFS layer while the flood is running
+	 * Rows holds the bits, ActiveRows lists the rows that have anything in them (ActiveCount of them),
+	 * and MinWord/MaxWord give the words each active row uses. Rows that aren't active have MaxWord = -1
+	 * and are all zero, which is what lets a step skip them.
+	 */
+	private static class Frontier
+	{
+		public long[][] Rows;
+		public int[] ActiveRows;
+		public int ActiveCount = 0;
+		public int[] MinWord;
+		public int[] MaxWord;
+
+		public Frontier(int height, int wordsPerRow)
+		{
+			this.Rows = new long[height][wordsPerRow];
+			this.ActiveRows = new int[height];
+			this.MinWord = new int[height];
+			this.MaxWord = new int[height];
+			Arrays.fill(this.MaxWord, -1);
+		}
+
+		/**
+		 * Adds row y to the active rows if it isn't there yet, and widens its word range to cover minWord to maxWord
+		 */
+		public void Include(int y, int minWord, int maxWord)
+		{
+			if (this.MaxWord[y] < 0)
+			{
+				this.ActiveRows[this.ActiveCount++] = y;
+				this.MinWord[y] = minWord;
+				this.MaxWord[y] = maxWord;
+			}
+			else
+			{
+				this.MinWord[y] = Math.min(this.MinWord[y], minWord);
+				this.MaxWord[y] = Math.max(this.MaxWord[y], maxWord);
+			}
+		}
+
+		/**
+		 * Zeroes the active rows' words and empties the active list, so the buffer can be used for another step
+		 */
+		public void Clear()
+		{
+			for (int i = 0; i < this.ActiveCount; i++)
+			{
+				int y = this.ActiveRows[i];
+				long[] row = this.Rows[y];
+				for (int w = this.MinWord[y]; w <= this.MaxWord[y]; w++)
+				{
+					row[w] = 0;
+				}
+				this.MaxWord[y] = -1;
+			}
+			this.ActiveCount = 0;
+		}
+	}
+
+	/**
+	 * Set of maze cells handed back by Reachable and DistanceBands
+	 * Each set has its own storage (or shares it only with the other bands from the same DistanceBands call), never the engine's buffers
+	 */
+	static abstract class CellSet
+	{
+		public int Width;
+		public int Height;
+
+		public CellSet(int width, int height)
+		{
+			this.Width = width;
+			this.Height = height;
+		}
+
+		public abstract boolean Contains(int x, int y);
+
+		public boolean Contains(Maze.Coord coord)
+		{
+			return Contains(coord.X, coord.Y);
+		}
+
+		public abstract int Count();
+
+		/**
+		 * Returns the cells in this set as Coords, row by row from the bottom, left to right
+		 * @param coordinates grid from Maze.CoordinateStarter, so the same Coord objects get handed back
+		 * @return
+		 */
+		public abstract List<Maze.Coord> ToCoordList(Maze.Coord[][] coordinates);
+	}
+
+	/**
+	 * Set of maze cells, stored as one bitset per row
+	 * The rows are taken as-is, so the caller shouldn't hang on to them
+	 */
+	static class RowCellSet extends CellSet
+	{
+		private long[][] rows;
+
+		public RowCellSet(long[][] rows, int width, int height)
+		{
+			super(width, height);
+			this.rows = rows;
+		}
+
+		@Override
+		public boolean Contains(int x, int y)
+		{
+			if (x < 0 || x >= this.Width || y < 0 || y >= this.Height)
+			{
+				return false;
+			}
+			return (this.rows[y][x >>> 6] & (1L << x)) != 0;
+		}
+
+		@Override
+		public int Count()
+		{
+			int count = 0;
+			for (long[] row : this.rows)
+			{
+				for (long word : row)
+				{
+					count += Long.bitCount(word);
+				}
+			}
+			return count;
+		}
+
+		@Override
+		public List<Maze.Coord> ToCoordList(Maze.Coord[][] coordinates)
+		{
+			List<Maze.Coord> rtnList = new LinkedList<Maze.Coord>();
+
+			for (int y = 0; y < this.Height; y++)
+			{
+				long[] row = this.rows[y];
+				for (int w = 0; w < row.length; w++)
+				{
+					long word = row[w];
+					while (word != 0)
+					{
+						int x = (w << 6) + Long.numberOfTrailingZeros(word);
+						rtnList.add(coordinates[x][y]);
+						word &= word - 1;
+					}
+				}
+			}
+
+			return rtnList;
+		}
+	}
+
+	/**
+	 * The list DistanceBands hands back
+	 * distance holds each cell's band (-1 if it was never reached), indexed by y * width + x
+	 * cells holds every reached cell's index, grouped by band, and band d is cells[bandStarts[d]] up to cells[bandStarts[d + 1]]
+	 * The bands themselves are only made when someone asks for one
+	 */
+	private static class BandList extends AbstractList<CellSet>
+	{
+		private int width;
+		private int height;
+		private int[] distance;
+		private int[] cells = new int[64];
+		private int cellCount = 0;
+		private int[] bandStarts = new int[64];
+		private int bandCount = 0;
+
+		public BandList(int width, int height)
+		{
+			this.width = width;
+			this.height = height;
+			this.distance = new int[width * height];
+			Arrays.fill(this.distance, -1);
+		}
+
+		/**
+		 * Records the cells of frontier as the next band
+		 */
+		public void AddBand(Frontier frontier)
+		{
+			if (this.bandCount + 2 > this.bandStarts.length)
+			{
+				this.bandStarts = Arrays.copyOf(this.bandStarts, this.bandStarts.length * 2);
+			}
+			this.bandStarts[this.bandCount] = this.cellCount;
+
+			for (int i = 0; i < frontier.ActiveCount; i++)
+			{
+				int y = frontier.ActiveRows[i];
+				long[] row = frontier.Rows[y];
+				for (int w = frontier.MinWord[y]; w <= frontier.MaxWord[y]; w++)
+				{
+					long word = row[w];
+					while (word != 0)
+					{
+						int idx = y * this.width + (w << 6) + Long.numberOfTrailingZeros(word);
+						if (this.cellCount == this.cells.length)
+						{
+							this.cells = Arrays.copyOf(this.cells, this.cells.length * 2);
+						}
+						this.cells[this.cellCount++] = idx;
+						this.distance[idx] = this.bandCount;
+						word &= word - 1;
+					}
+				}
+			}
+
+			this.bandCount++;
+			this.bandStarts[this.bandCount] = this.cellCount;
+		}
+
+		@Override
+		public CellSet get(int band)
+		{
+			if (band < 0 || band >= this.bandCount)
+			{
+				throw new IndexOutOfBoundsException("Band " + band + " requested, but there are only " + this.bandCount);
+			}
+			return new Band(this, band);
+		}
+
+		@Override
+		public int size()
+		{
+			return this.bandCount;
+		}
+	}
+
+	/**
+	 * One band of a BandList, read straight out of the list's arrays
+	 */
+	private static class Band extends CellSet
+	{
+		private BandList bands;
+		private int band;
+
+		public Band(BandList bands, int band)
+		{
+			super(bands.width, bands.height);
+			this.bands = bands;
+			this.band = band;
+		}
+
+		@Override
+		public boolean Contains(int x, int y)
+		{
+			if (x < 0 || x >= this.Width || y < 0 || y >= this.Height)
+			{
+				return false;
+			}
+			return this.bands.distance[y * this.Width + x] == this.band;
+		}
+
+		@Override
+		public int Count()
+		{
+			return this.bands.bandStarts[this.band + 1] - this.bands.bandStarts[this.band];
+		}
+
+		@Override
+		public List<Maze.Coord> ToCoordList(Maze.Coord[][] coordinates)
+		{
+			List<Maze.Coord> rtnList = new LinkedList<Maze.Coord>();
+
+			// AddBand goes through the rows from the bottom, left to right, so the cells are already in that order
+			for (int i = this.bands.bandStarts[this.band]; i < this.bands.bandStarts[this.band + 1]; i++)
+			{
+				int idx = this.bands.cells[i];
+				rtnList.add(coordinates[idx % this.Width][idx / this.Width]);
+			}
+
+			return rtnList;
+		}
+	}
+}
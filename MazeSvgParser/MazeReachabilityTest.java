@@ -0,0 +1,406 @@
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * Checks MazeReachability against a plain one-cell-at-a-time BFS over the same unreachable neighbors map
+ * The widths straddle the 64-bit word boundaries, since that's where the carries and the last word mask matter
+ */
+public class MazeReachabilityTest
+{
+	private static final int[] WIDTHS = { 1, 2, 63, 64, 65, 127, 128, 129 };
+	private static final int[] HEIGHTS = { 1, 2, 7 };
+
+	@Test
+	public void reachableAndBandsMatchBfs()
+	{
+		Random random = new Random(540);
+
+		for (int width : WIDTHS)
+		{
+			for (int height : HEIGHTS)
+			{
+				for (int trial = 0; trial < 10; trial++)
+				{
+					Maze.Coord[][] coordinates = Maze.CoordinateStarter(width, height);
+					Map<Maze.Coord, Set<Maze.Coord>> unreachable = randomWalls(coordinates, random, random.nextDouble() * 0.6);
+					MazeReachability engine = MazeReachability.FromUnreachableNeighbors(unreachable, width, height);
+
+					List<Maze.Coord> sources = new ArrayList<Maze.Coord>();
+					int sourceCount = 1 + random.nextInt(3);
+					for (int i = 0; i < sourceCount; i++)
+					{
+						sources.add(coordinates[random.nextInt(width)][random.nextInt(height)]);
+					}
+
+					String label = width + "x" + height + " trial " + trial;
+					assertMatchesBfs(label + " single source", engine, coordinates, unreachable, sources.subList(0, 1));
+					assertMatchesBfs(label + " multi source", engine, coordinates, unreachable, sources);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void perfectMazesMatchBfs()
+	{
+		Random random = new Random(7);
+
+		for (int width : new int[] { 63, 64, 65, 128 })
+		{
+			Maze.Coord[][] coordinates = Maze.CoordinateStarter(width, 40);
+			Map<Maze.Coord, Set<Maze.Coord>> unreachable = backtrackerMaze(coordinates, random);
+			MazeReachability engine = MazeReachability.FromUnreachableNeighbors(unreachable, width, 40);
+
+			List<Maze.Coord> sources = Arrays.asList(coordinates[0][0], coordinates[width - 1][39], coordinates[width / 2][20]);
+			assertMatchesBfs(width + " wide perfect maze", engine, coordinates, unreachable, sources.subList(0, 1));
+			assertMatchesBfs(width + " wide perfect maze, 3 sources", engine, coordinates, unreachable, sources);
+		}
+	}
+
+	@Test
+	public void duplicateSourcesCountOnce()
+	{
+		Maze.Coord[][] coordinates = Maze.CoordinateStarter(65, 3);
+		Map<Maze.Coord, Set<Maze.Coord>> unreachable = randomWalls(coordinates, new Random(1), 0.2);
+		MazeReachability engine = MazeReachability.FromUnreachableNeighbors(unreachable, 65, 3);
+
+		List<Maze.Coord> sources = Arrays.asList(coordinates[64][1], coordinates[64][1], coordinates[3][0], coordinates[3][0]);
+		assertMatchesBfs("duplicate sources", engine, coordinates, unreachable, sources);
+		assertEquals(2, engine.DistanceBands(sources).get(0).Count());
+	}
+
+	@Test
+	public void emptySourceListReachesNothing()
+	{
+		Maze.Coord[][] coordinates = Maze.CoordinateStarter(64, 4);
+		MazeReachability engine = MazeReachability.FromUnreachableNeighbors(randomWalls(coordinates, new Random(2), 0.3), 64, 4);
+
+		List<Maze.Coord> none = Collections.<Maze.Coord>emptyList();
+		assertEquals(0, engine.Reachable(none).Count());
+		assertTrue(engine.Reachable(none).ToCoordList(coordinates).isEmpty());
+		assertEquals(0, engine.DistanceBands(none).size());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void sourceOutsideMazeThrows()
+	{
+		Maze.Coord[][] coordinates = Maze.CoordinateStarter(5, 5);
+		MazeReachability engine = MazeReachability.FromUnreachableNeighbors(randomWalls(coordinates, new Random(3), 0), 5, 5);
+
+		engine.Reachable(new Maze.Coord(5, 0));
+	}
+
+	/**
+	 * Band 1 around a cell is exactly the neighbors it can step to, so if band 1 matches for every cell then both ways of
+	 * building the engine ended up with the same walls
+	 */
+	@Test
+	public void barrierWallsMatchUnreachableNeighbors() throws Exception
+	{
+		Random random = new Random(11);
+		Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+
+		for (int width : new int[] { 1, 63, 64, 65, 128 })
+		{
+			for (int height : new int[] { 1, 4 })
+			{
+				Maze.Coord[][] coordinates = Maze.CoordinateStarter(width, height);
+				List<Maze.Barrier> barriers = randomBarriers(doc, width, height, random);
+
+				Map<Maze.Coord, Set<Maze.Coord>> unreachable = emptyUnreachableMap(coordinates);
+				for (Maze.Barrier barrier : barriers)
+				{
+					for (Maze.Pair pair : barrier.GetEstrangedNeighbors(coordinates))
+					{
+						unreachable.get(pair.A).add(pair.B);
+						unreachable.get(pair.B).add(pair.A);
+					}
+				}
+
+				MazeReachability fromBarriers = new MazeReachability(barriers, width, height);
+				MazeReachability fromMap = MazeReachability.FromUnreachableNeighbors(unreachable, width, height);
+
+				for (int x = 0; x < width; x++)
+				{
+					for (int y = 0; y < height; y++)
+					{
+						String label = width + "x" + height + " at " + coordinates[x][y];
+						List<Maze.Coord> barrierNeighbors = firstBand(fromBarriers, coordinates, x, y);
+						List<Maze.Coord> mapNeighbors = firstBand(fromMap, coordinates, x, y);
+						assertEquals(label, mapNeighbors, barrierNeighbors);
+						assertEquals(label, bfsNeighbors(coordinates, unreachable, x, y), new HashSet<Maze.Coord>(mapNeighbors));
+					}
+				}
+			}
+		}
+	}
+
+	private static void assertMatchesBfs(String label, MazeReachability engine, Maze.Coord[][] coordinates,
+			Map<Maze.Coord, Set<Maze.Coord>> unreachable, List<Maze.Coord> sources)
+	{
+		int width = coordinates.length;
+		int height = coordinates[0].length;
+		int[][] distance = bfs(coordinates, unreachable, sources);
+
+		MazeReachability.CellSet reachable = engine.Reachable(sources);
+		List<MazeReachability.CellSet> bands = engine.DistanceBands(sources);
+
+		int reachedCount = 0;
+		int maxDistance = -1;
+		for (int x = 0; x < width; x++)
+		{
+			for (int y = 0; y < height; y++)
+			{
+				int d = distance[x][y];
+				assertEquals(label + " reachable at (" + x + ", " + y + ")", d >= 0, reachable.Contains(x, y));
+				if (d >= 0)
+				{
+					// every reached cell is in its own band, and the band total below rules out any extras
+					assertTrue(label + " band " + d + " at (" + x + ", " + y + ")", d < bands.size() && bands.get(d).Contains(x, y));
+					reachedCount++;
+					maxDistance = Math.max(maxDistance, d);
+				}
+			}
+		}
+
+		// nothing outside the maze should ever show up
+		assertFalse(reachable.Contains(width, 0));
+		assertFalse(reachable.Contains(-1, 0));
+
+		assertEquals(label + " reachable count", reachedCount, reachable.Count());
+		assertEquals(label + " reachable coord list", reachedCount, reachable.ToCoordList(coordinates).size());
+		assertEquals(label + " band count", maxDistance + 1, bands.size());
+
+		int bandTotal = 0;
+		for (MazeReachability.CellSet band : bands)
+		{
+			assertTrue(label + " empty band", band.Count() > 0);
+			assertEquals(label + " band coord list", band.Count(), band.ToCoordList(coordinates).size());
+			bandTotal += band.Count();
+		}
+		assertEquals(label + " cells across bands", reachedCount, bandTotal);
+	}
+
+	private static int[][] bfs(Maze.Coord[][] coordinates, Map<Maze.Coord, Set<Maze.Coord>> unreachable, List<Maze.Coord> sources)
+	{
+		int width = coordinates.length;
+		int height = coordinates[0].length;
+		int[][] distance = new int[width][height];
+		for (int[] column : distance)
+		{
+			Arrays.fill(column, -1);
+		}
+
+		ArrayDeque<Maze.Coord> queue = new ArrayDeque<Maze.Coord>();
+		for (Maze.Coord source : sources)
+		{
+			if (distance[source.X][source.Y] < 0)
+			{
+				distance[source.X][source.Y] = 0;
+				queue.add(coordinates[source.X][source.Y]);
+			}
+		}
+
+		while (!queue.isEmpty())
+		{
+			Maze.Coord current = queue.poll();
+			for (Maze.Coord neighbor : openNeighbors(coordinates, unreachable, current.X, current.Y))
+			{
+				if (distance[neighbor.X][neighbor.Y] < 0)
+				{
+					distance[neighbor.X][neighbor.Y] = distance[current.X][current.Y] + 1;
+					queue.add(neighbor);
+				}
+			}
+		}
+
+		return distance;
+	}
+
+	private static List<Maze.Coord> openNeighbors(Maze.Coord[][] coordinates, Map<Maze.Coord, Set<Maze.Coord>> unreachable, int x, int y)
+	{
+		List<Maze.Coord> rtnList = new ArrayList<Maze.Coord>();
+		int[][] moves = { { 1, 0 }, { -1, 0 }, { 0, 1 }, { 0, -1 } };
+
+		for (int[] move : moves)
+		{
+			int nx = x + move[0];
+			int ny = y + move[1];
+			if (nx >= 0 && nx < coordinates.length && ny >= 0 && ny < coordinates[0].length
+					&& (unreachable == null || !unreachable.get(coordinates[x][y]).contains(coordinates[nx][ny])))
+			{
+				rtnList.add(coordinates[nx][ny]);
+			}
+		}
+
+		return rtnList;
+	}
+
+	private static Set<Maze.Coord> bfsNeighbors(Maze.Coord[][] coordinates, Map<Maze.Coord, Set<Maze.Coord>> unreachable, int x, int y)
+	{
+		return new HashSet<Maze.Coord>(openNeighbors(coordinates, unreachable, x, y));
+	}
+
+	private static List<Maze.Coord> firstBand(MazeReachability engine, Maze.Coord[][] coordinates, int x, int y)
+	{
+		List<MazeReachability.CellSet> bands = engine.DistanceBands(coordinates[x][y]);
+		if (bands.size() < 2)
+		{
+			return Collections.<Maze.Coord>emptyList();
+		}
+		return bands.get(1).ToCoordList(coordinates);
+	}
+
+	private static Map<Maze.Coord, Set<Maze.Coord>> emptyUnreachableMap(Maze.Coord[][] coordinates)
+	{
+		Map<Maze.Coord, Set<Maze.Coord>> rtnMap = new LinkedHashMap<Maze.Coord, Set<Maze.Coord>>();
+		for (int x = 0; x < coordinates.length; x++)
+		{
+			for (int y = 0; y < coordinates[x].length; y++)
+			{
+				rtnMap.put(coordinates[x][y], new HashSet<Maze.Coord>());
+			}
+		}
+		return rtnMap;
+	}
+
+	private static void separate(Map<Maze.Coord, Set<Maze.Coord>> unreachable, Maze.Coord a, Maze.Coord b)
+	{
+		unreachable.get(a).add(b);
+		unreachable.get(b).add(a);
+	}
+
+	private static Map<Maze.Coord, Set<Maze.Coord>> randomWalls(Maze.Coord[][] coordinates, Random random, double wallChance)
+	{
+		Map<Maze.Coord, Set<Maze.Coord>> unreachable = emptyUnreachableMap(coordinates);
+		int width = coordinates.length;
+		int height = coordinates[0].length;
+
+		for (int x = 0; x < width; x++)
+		{
+			for (int y = 0; y < height; y++)
+			{
+				if (x + 1 < width && random.nextDouble() < wallChance)
+				{
+					separate(unreachable, coordinates[x][y], coordinates[x + 1][y]);
+				}
+				if (y + 1 < height && random.nextDouble() < wallChance)
+				{
+					separate(unreachable, coordinates[x][y], coordinates[x][y + 1]);
+				}
+			}
+		}
+
+		return unreachable;
+	}
+
+	/**
+	 * Recursive backtracker maze (one path between any two cells), built by knocking walls out of a fully walled grid
+	 */
+	private static Map<Maze.Coord, Set<Maze.Coord>> backtrackerMaze(Maze.Coord[][] coordinates, Random random)
+	{
+		int width = coordinates.length;
+		int height = coordinates[0].length;
+		Map<Maze.Coord, Set<Maze.Coord>> unreachable = randomWalls(coordinates, random, 1.0);
+
+		boolean[][] carved = new boolean[width][height];
+		ArrayDeque<Maze.Coord> stack = new ArrayDeque<Maze.Coord>();
+		stack.push(coordinates[0][0]);
+		carved[0][0] = true;
+
+		while (!stack.isEmpty())
+		{
+			Maze.Coord current = stack.peek();
+			List<Maze.Coord> options = new ArrayList<Maze.Coord>();
+			for (Maze.Coord neighbor : allNeighbors(coordinates, current))
+			{
+				if (!carved[neighbor.X][neighbor.Y])
+				{
+					options.add(neighbor);
+				}
+			}
+
+			if (options.isEmpty())
+			{
+				stack.pop();
+				continue;
+			}
+
+			Maze.Coord chosen = options.get(random.nextInt(options.size()));
+			unreachable.get(current).remove(chosen);
+			unreachable.get(chosen).remove(current);
+			carved[chosen.X][chosen.Y] = true;
+			stack.push(chosen);
+		}
+
+		return unreachable;
+	}
+
+	private static List<Maze.Coord> allNeighbors(Maze.Coord[][] coordinates, Maze.Coord coord)
+	{
+		return openNeighbors(coordinates, null, coord.X, coord.Y);
+	}
+
+	/**
+	 * Outer edges plus random one-block interior lines, laid out the way Barrier reads them out of the svg
+	 * (2 pixel offset, 16 pixel blocks, and y counted down from the top of the image)
+	 */
+	private static List<Maze.Barrier> randomBarriers(Document doc, int width, int height, Random random) throws Exception
+	{
+		List<Maze.Barrier> rtnList = new ArrayList<Maze.Barrier>();
+
+		for (int x = 0; x <= width; x++)
+		{
+			for (int y = 0; y < height; y++)
+			{
+				if (x == 0 || x == width || random.nextDouble() < 0.4)
+				{
+					int svgX = 2 + 16 * x;
+					rtnList.add(line(doc, svgX, 2 + 16 * (height - y - 1), svgX, 2 + 16 * (height - y), width, height));
+				}
+			}
+		}
+
+		for (int y = 0; y <= height; y++)
+		{
+			for (int x = 0; x < width; x++)
+			{
+				if (y == 0 || y == height || random.nextDouble() < 0.4)
+				{
+					int svgY = 2 + 16 * (height - y);
+					rtnList.add(line(doc, 2 + 16 * x, svgY, 2 + 16 * (x + 1), svgY, width, height));
+				}
+			}
+		}
+
+		return rtnList;
+	}
+
+	private static Maze.Barrier line(Document doc, int x1, int y1, int x2, int y2, int width, int height) throws Exception
+	{
+		Element element = doc.createElement("line");
+		element.setAttribute("x1", Integer.toString(x1));
+		element.setAttribute("y1", Integer.toString(y1));
+		element.setAttribute("x2", Integer.toString(x2));
+		element.setAttribute("y2", Integer.toString(y2));
+		return new Maze.Barrier(element, width, height);
+	}
+}